@@ -0,0 +1,24 @@
+package com.lib.util.parsing.tool.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// SHA-256 of file contents, used by the caches to tell whether a file changed. Timestamps are
+// not trusted for this: they can be coarse, or be left unchanged by a rewrite.
+final class ContentDigest {
+
+  private ContentDigest() {}
+
+  static byte[] of(byte[] content) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(content);
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static boolean matches(byte[] digest, byte[] other) {
+    return MessageDigest.isEqual(digest, other);
+  }
+}
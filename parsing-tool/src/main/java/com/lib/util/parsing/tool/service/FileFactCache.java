@@ -0,0 +1,69 @@
+package com.lib.util.parsing.tool.service;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Facts per source file shared by all scans of the engine. An entry is only reused while the
+// SHA-256 of the file content is unchanged, so files rewritten by a scan are parsed again no
+// matter how coarse the file system's timestamps are. Least recently used entries are evicted
+// once the estimated size goes over the limit.
+class FileFactCache {
+
+  private final long maxBytes;
+  private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes;
+
+  private record Entry(byte[] digest, FileFacts facts, long estimatedBytes) {}
+
+  FileFactCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  FileFacts get(Path file, byte[] content, Supplier<FileFacts> extractor) {
+    if (maxBytes <= 0) {
+      return extractor.get();
+    }
+
+    Path key = file.toAbsolutePath().normalize();
+    byte[] digest = ContentDigest.of(content);
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry != null && ContentDigest.matches(entry.digest(), digest)) {
+        return entry.facts();
+      }
+    }
+
+    // Parsing happens outside the lock; two scans racing on the same file both extract it
+    FileFacts facts = extractor.get();
+    Entry entry = new Entry(digest, facts, facts.estimatedBytes());
+    synchronized (this) {
+      Entry previous = entries.put(key, entry);
+      if (previous != null) {
+        bytes -= previous.estimatedBytes();
+      }
+      bytes += entry.estimatedBytes();
+      evict();
+    }
+    return facts;
+  }
+
+  synchronized long bytes() {
+    return bytes;
+  }
+
+  synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<Path, Entry>> eldest = entries.entrySet().iterator();
+    while (bytes > maxBytes && eldest.hasNext()) {
+      bytes -= eldest.next().getValue().estimatedBytes();
+      eldest.remove();
+    }
+  }
+}
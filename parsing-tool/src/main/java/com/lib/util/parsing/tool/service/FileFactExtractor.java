@@ -0,0 +1,328 @@
+package com.lib.util.parsing.tool.service;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.Problem;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Modifier;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.MethodReferenceExpr;
+import com.github.javaparser.ast.stmt.ExpressionStmt;
+import com.github.javaparser.ast.stmt.ForEachStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import com.lib.util.engine.tool.constant.EngineToolConstant;
+import com.lib.util.parsing.tool.service.SpillingMethodAggregator.DeclarationRecord;
+
+// Parses one source file and extracts its declared and invoked methods. An instance is used for
+// a single file only, so extraction of different files can run on different threads. The content
+// is read by the caller, so it is parsed exactly as it was hashed for the fact cache.
+class FileFactExtractor {
+
+  final Logger log = LogManager.getLogger(FileFactExtractor.class);
+
+  private static final List<String> EXCLUSION_PATTERNS =
+      List.of("Application.java", "extends JpaRepository<", "interface");
+
+  // Annotations of methods that are invoked indirectly, e.g. by spring
+  private static final Set<String> INDIRECT_INVOCATION_ANNOTATIONS =
+      Set.of(
+          "Bean",
+          "Override",
+          "PostConstruct",
+          "Before",
+          "After",
+          "Around",
+          "RequestMapping",
+          "GetMapping",
+          "PostMapping",
+          "PutMapping",
+          "PatchMapping",
+          "DeleteMapping",
+          "BeforeEach",
+          "Named",
+          "PreDestroy",
+          "Deprecated",
+          "Value",
+          "Scheduled",
+          "JsonIgnore",
+          "Query",
+          "Setup");
+
+  private final Path filePath;
+  private final String content;
+  private final List<DeclarationRecord> declarations = new ArrayList<>();
+  private final Set<String> invocations = new HashSet<>();
+  private final List<String> publicMaps = new ArrayList<>();
+  private final Set<String> getterSetterMethods = new HashSet<>();
+
+  private FileFactExtractor(Path filePath, String content) {
+    this.filePath = filePath;
+    this.content = content;
+  }
+
+  static FileFacts extract(Path filePath, String content, ParseProfile parseProfile) {
+    return new FileFactExtractor(filePath, content).extract(parseProfile);
+  }
+
+  private FileFacts extract(ParseProfile parseProfile) {
+    ParseResult<CompilationUnit> result = parseProfile.parser().parse(content);
+    if (result.isSuccessful()) {
+      CompilationUnit cu = result.getResult().orElse(null);
+      if (cu != null) {
+        // Declared methods are only taken from files that are not excluded, invoked methods
+        // from every file
+        if (!isExcludedFile()) {
+          new GetterVariableDetector().visit(cu, null);
+          new MethodDeclarationVisitor().visit(cu, null);
+        }
+        new MethodInvocationVisitor().visit(cu, null);
+      }
+    } else {
+      log.error("Parsing failed for: {}", filePath);
+      List<Problem> problems = result.getProblems();
+      for (Problem problem : problems) {
+        log.error("Error: {}", problem);
+      }
+    }
+    return new FileFacts(declarations, invocations, publicMaps);
+  }
+
+  // Helper method for exclusion logic
+  private boolean isExcludedFile() {
+    return content
+        .lines()
+        .flatMap(line -> EXCLUSION_PATTERNS.stream().filter(line::contains))
+        .findAny()
+        .isPresent(); // Check if any line matches any pattern
+  }
+
+  public class GetterVariableDetector extends VoidVisitorAdapter<Void> {
+
+    private Map<String, String> declaredFields = new HashMap<>();
+
+    @Override
+    public void visit(FieldDeclaration n, Void arg) {
+      super.visit(n, arg);
+
+      if (n.getModifiers().contains(Modifier.publicModifier())
+          && n.getModifiers().contains(Modifier.staticModifier())
+          && n.getElementType() instanceof ClassOrInterfaceType
+          && ((ClassOrInterfaceType) n.getElementType()).getName().asString().equals("Map")) {
+        publicMaps.add(
+            "Found public static Map variable: "
+                + n.getVariables().get(0).getName()
+                + " in file "
+                + getClassNameOfField(n));
+      }
+
+      for (VariableDeclarator var : n.getVariables()) {
+
+        declaredFields.put(var.getNameAsString(), var.getType().asString());
+      }
+    }
+
+    @Override
+    public void visit(MethodDeclaration n, Void arg) {
+      super.visit(n, arg);
+
+      String methodName = n.getNameAsString();
+      if (isGetterOrSetter(methodName)) {
+        String potentialFieldName = getFieldNameFromGetterSetter(methodName);
+        if (declaredFields.containsKey(potentialFieldName)) {
+          // Getter has a corresponding variable declared:
+          String fieldType = declaredFields.get(potentialFieldName);
+          // You can access additional information like field type here
+          getterSetterMethods.add(methodName);
+          log.info(
+              "Method: {} has corresponding variable:{} (type:{})",
+              methodName,
+              potentialFieldName,
+              fieldType);
+        }
+      }
+    }
+
+    private boolean isGetterOrSetter(String methodName) {
+      return methodName.startsWith(EngineToolConstant.GET)
+          || methodName.startsWith(EngineToolConstant.SET)
+          || methodName.startsWith(EngineToolConstant.INIT)
+          || methodName.startsWith(EngineToolConstant.IS);
+    }
+
+    private String getFieldNameFromGetterSetter(String methodName) {
+      String fieldName = "";
+
+      if (methodName.startsWith(EngineToolConstant.GET) && methodName.length() > 3) {
+        fieldName = methodName.substring(3);
+      } else if (methodName.startsWith(EngineToolConstant.SET) && methodName.length() > 3) {
+        fieldName = methodName.substring(3);
+      } else if (methodName.startsWith(EngineToolConstant.INIT) && methodName.length() > 4) {
+        fieldName = methodName.substring(4);
+      } else if (methodName.startsWith(EngineToolConstant.IS) && methodName.length() > 2) {
+        fieldName = methodName.substring(2);
+      } else {
+        fieldName = methodName; // No change if prefix not found
+      }
+
+      return fieldName.substring(0, 1).toLowerCase()
+          + fieldName.substring(1); // Lowercase first letter
+    }
+  }
+
+  // This method is to filter all methods within the project that is declared
+  private class MethodDeclarationVisitor extends VoidVisitorAdapter<Void> {
+    @Override
+    public void visit(MethodDeclaration methodDeclaration, Void arg) {
+      super.visit(methodDeclaration, arg);
+
+      if (!isMethodReturningSelfForDesignPatternImplementation(methodDeclaration)
+          && !getterSetterMethods.contains(methodDeclaration.getNameAsString())) {
+        // to white list a method that is invoked via spring annotations
+        if (indirectMethodInvokedThruAnnotation(methodDeclaration)) {
+          invocations.add(methodDeclaration.getNameAsString());
+        }
+        declarations.add(
+            new DeclarationRecord(
+                methodDeclaration.getNameAsString(),
+                getClassNameOfMethod(methodDeclaration),
+                filePath.toString(),
+                methodDeclaration.getDeclarationAsString()));
+      }
+    }
+
+    private boolean isMethodReturningSelfForDesignPatternImplementation(
+        MethodDeclaration methodDeclaration) {
+      String returnType = methodDeclaration.getType().toString();
+      String className = getClassNameOfMethod(methodDeclaration);
+
+      // Check if return type matches class name
+      return returnType.equals(className);
+    }
+  }
+
+  // This method is to filter all methods within the project that is invoked
+  private class MethodInvocationVisitor extends VoidVisitorAdapter<Void> {
+    @Override
+    public void visit(MethodCallExpr methodCallExpr, Void arg) {
+      super.visit(methodCallExpr, arg);
+
+      invocations.add(methodCallExpr.getNameAsString());
+      if (methodCallExpr.getScope().isPresent()) {
+        methodCallExpr.getScope().get().accept(this, arg); // Visit the scope (expression)
+      }
+    }
+
+    @Override
+    public void visit(ExpressionStmt expressionStmt, Void arg) {
+      super.visit(expressionStmt, arg);
+      expressionStmt.getExpression().accept(this, arg); // Visit the expression
+    }
+
+    @Override
+    public void visit(IfStmt ifStmt, Void arg) {
+      super.visit(ifStmt, arg);
+      ifStmt.getThenStmt().accept(this, arg);
+      ifStmt.getCondition().accept(this, arg);
+      if (ifStmt.getElseStmt().isPresent()) {
+        ifStmt.getElseStmt().get().accept(this, arg); // Visit the scope (expression)
+      }
+    }
+
+    @Override
+    public void visit(LambdaExpr lambdaExpr, Void arg) {
+      // Handle lambda expressions
+      super.visit(lambdaExpr, arg);
+      lambdaExpr.getBody().accept(this, arg);
+    }
+
+    @Override
+    public void visit(ForEachStmt forEachStmt, Void arg) {
+      // Handle lambda expressions
+      super.visit(forEachStmt, arg);
+      forEachStmt.getBody().accept(this, arg);
+    }
+
+    @Override
+    public void visit(MethodReferenceExpr methodReferenceExpr, Void arg) {
+      // Handle method references
+      super.visit(methodReferenceExpr, arg);
+      invocations.add(methodReferenceExpr.getIdentifier());
+    }
+  }
+
+  // This method is to white list methods that are invoked by spring annotations
+  private static boolean indirectMethodInvokedThruAnnotation(MethodDeclaration method) {
+    for (AnnotationExpr annotation : method.getAnnotations()) {
+      String annotationName = annotation.getNameAsString();
+
+      for (String allowedAnnotation : INDIRECT_INVOCATION_ANNOTATIONS) {
+        if (annotationName.contains(allowedAnnotation)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // This method is to get the class name of the method
+  private String getClassNameOfMethod(MethodDeclaration method) {
+    String className = classNameOf(method);
+    log.info("Method {} resides in class: {}", method.getNameAsString(), className);
+    return className;
+  }
+
+  static String classNameOf(MethodDeclaration method) {
+    // Get the parent node
+    Optional<Node> parent = method.getParentNode();
+
+    // Check if the parent is a ClassOrInterfaceDeclaration
+    if (parent.get() instanceof ClassOrInterfaceDeclaration) {
+      ClassOrInterfaceDeclaration classDecl = (ClassOrInterfaceDeclaration) parent.get();
+
+      // Get the class name as a string
+      return classDecl.getNameAsString();
+    } else {
+      // Handle the case where the enclosing type is not a class or interface
+      return "Method declared in a non class";
+    }
+  }
+
+  private String getClassNameOfField(FieldDeclaration field) {
+    // Get the parent node
+    Optional<Node> parent = field.getParentNode();
+
+    // Check if the parent is a ClassOrInterfaceDeclaration
+    if (parent.get() instanceof ClassOrInterfaceDeclaration) {
+      ClassOrInterfaceDeclaration classDecl = (ClassOrInterfaceDeclaration) parent.get();
+
+      // Get the class name as a string
+      String className = classDecl.getNameAsString();
+
+      // Use the className as needed
+      log.info("Field {} resides in class: {}", field.getVariable(0).getNameAsString(), className);
+      return className;
+    } else {
+      // Handle the case where the enclosing type is not a class or interface
+      log.info("Field declared in a non class");
+      return "Field declared in a non class";
+    }
+  }
+}
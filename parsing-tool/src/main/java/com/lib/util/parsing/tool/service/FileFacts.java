@@ -0,0 +1,31 @@
+package com.lib.util.parsing.tool.service;
+
+import java.util.List;
+import java.util.Set;
+import com.lib.util.parsing.tool.service.SpillingMethodAggregator.DeclarationRecord;
+
+// Everything the scan needs from one source file. Holds no AST nodes, so it can be cached and
+// shared between scans.
+record FileFacts(
+    List<DeclarationRecord> declarations, Set<String> invocations, List<String> publicMaps) {
+
+  FileFacts {
+    declarations = List.copyOf(declarations);
+    invocations = Set.copyOf(invocations);
+    publicMaps = List.copyOf(publicMaps);
+  }
+
+  long estimatedBytes() {
+    long bytes = 64;
+    for (DeclarationRecord declaration : declarations) {
+      bytes += declaration.estimatedBytes();
+    }
+    for (String invocation : invocations) {
+      bytes += 64 + 2L * invocation.length();
+    }
+    for (String publicMap : publicMaps) {
+      bytes += 64 + 2L * publicMap.length();
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,50 @@
+package com.lib.util.parsing.tool.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import com.cubs.solverlib.model.Rule;
+
+// Input of a single scan. Only immutable values are held, the manifest rules are reduced to the
+// names of the methods they fire, so options can be shared between threads and submitted more
+// than once.
+public record ScanOptions(
+    String projectPath,
+    Set<String> manifestMethods,
+    ParseProfile parseProfile,
+    long spillThresholdBytes) {
+
+  public ScanOptions {
+    Objects.requireNonNull(projectPath, "projectPath");
+    manifestMethods = manifestMethods == null ? Set.of() : Set.copyOf(manifestMethods);
+    parseProfile = parseProfile == null ? ParseProfile.SCAN : parseProfile;
+  }
+
+  // Options with the SCAN profile and everything kept in memory
+  public static ScanOptions of(String projectPath, Map<String, List<Rule>> firingRules) {
+    return new ScanOptions(projectPath, manifestMethodsOf(firingRules), ParseProfile.SCAN, 0);
+  }
+
+  public static Set<String> manifestMethodsOf(Map<String, List<Rule>> firingRules) {
+    if (firingRules == null) {
+      return Set.of();
+    }
+    return firingRules
+        .values()
+        .stream()
+        .flatMap(List::stream)
+        .flatMap(rule -> rule.getMethods().stream().map(method -> method.getName()))
+        .collect(Collectors.toSet());
+  }
+
+  public ScanOptions withParseProfile(ParseProfile parseProfile) {
+    return new ScanOptions(projectPath, manifestMethods, parseProfile, spillThresholdBytes);
+  }
+
+  // 0 keeps all scan records in memory. A spilling scan does not use the engine's fact cache.
+  public ScanOptions withSpillThresholdBytes(long spillThresholdBytes) {
+    return new ScanOptions(projectPath, manifestMethods, parseProfile, spillThresholdBytes);
+  }
+}
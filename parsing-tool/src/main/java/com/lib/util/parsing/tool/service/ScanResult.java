@@ -0,0 +1,19 @@
+package com.lib.util.parsing.tool.service;
+
+import java.util.List;
+import java.util.Set;
+
+// Outcome of a single scan
+public record ScanResult(
+    String projectPath,
+    String report,
+    List<String> unusedMethods,
+    Set<String> methodsInManifestButNotInCode,
+    List<String> publicMaps) {
+
+  public ScanResult {
+    unusedMethods = List.copyOf(unusedMethods);
+    methodsInManifestButNotInCode = Set.copyOf(methodsInManifestButNotInCode);
+    publicMaps = List.copyOf(publicMaps);
+  }
+}
@@ -0,0 +1,378 @@
+package com.lib.util.parsing.tool.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// Aggregation of declared and invoked methods with a cap on the memory held by those records.
+// Records are buffered in memory until the threshold is reached, then spilled to sorted runs on
+// local disk. Declarations are matched against invocations with an external merge-join over the
+// runs. Only these records are bounded: the caller's file list, report and public map findings
+// still grow with the size of the project.
+public class SpillingMethodAggregator implements Closeable {
+
+  final Logger log = LogManager.getLogger(SpillingMethodAggregator.class);
+
+  // Rough per-record cost of the buffered collections on top of the string contents
+  private static final long RECORD_OVERHEAD_BYTES = 64;
+
+  // Upper bound on runs merged at once, keeps the number of open files in check
+  private static final int MAX_MERGE_FAN_IN = 64;
+
+  private static final RunFormat<DeclarationRecord> DECLARATIONS =
+      new RunFormat<>(
+          "declared",
+          SpillingMethodAggregator::readDeclaration,
+          SpillingMethodAggregator::writeDeclaration,
+          Comparator.comparing(DeclarationRecord::name),
+          false);
+
+  // Only whether a name is invoked matters, so equal names are collapsed when runs are merged
+  private static final RunFormat<String> INVOCATIONS =
+      new RunFormat<>(
+          "invoked",
+          SpillingMethodAggregator::readString,
+          SpillingMethodAggregator::writeString,
+          Comparator.naturalOrder(),
+          true);
+
+  private final long thresholdBytes;
+  private final List<DeclarationRecord> declarationBuffer = new ArrayList<>();
+  private final Set<String> invocationBuffer = new HashSet<>();
+  private final List<SpillRun> declarationRuns = new ArrayList<>();
+  private final List<SpillRun> invocationRuns = new ArrayList<>();
+  private long bufferedBytes;
+  private Path spillDirectory;
+
+  public SpillingMethodAggregator(long thresholdBytes) {
+    if (thresholdBytes <= 0) {
+      throw new IllegalArgumentException("Spill threshold must be positive: " + thresholdBytes);
+    }
+    this.thresholdBytes = thresholdBytes;
+  }
+
+  // A declared method, reduced to what is needed for reporting and rewriting the file
+  public record DeclarationRecord(
+      String name, String className, String filePath, String declaration) {
+
+    long estimatedBytes() {
+      return RECORD_OVERHEAD_BYTES
+          + 2L * (name.length() + className.length() + filePath.length() + declaration.length());
+    }
+  }
+
+  public void addDeclaration(DeclarationRecord declaration) throws IOException {
+    declarationBuffer.add(declaration);
+    bufferedBytes += declaration.estimatedBytes();
+    spillIfNeeded();
+  }
+
+  public void addInvocation(String methodName) throws IOException {
+    if (invocationBuffer.add(methodName)) {
+      bufferedBytes += RECORD_OVERHEAD_BYTES + 2L * methodName.length();
+      spillIfNeeded();
+    }
+  }
+
+  public int getSpilledRunCount() {
+    return declarationRuns.size() + invocationRuns.size();
+  }
+
+  Path getSpillDirectory() {
+    return spillDirectory;
+  }
+
+  // Streams every declaration in method name order together with whether it is invoked anywhere
+  public void mergeJoin(BiConsumer<DeclarationRecord, Boolean> consumer) throws IOException {
+    if (declarationRuns.isEmpty() && invocationRuns.isEmpty()) {
+      // Threshold never reached, everything is still in memory
+      declarationBuffer.sort(Comparator.comparing(DeclarationRecord::name));
+      for (DeclarationRecord declaration : declarationBuffer) {
+        consumer.accept(declaration, invocationBuffer.contains(declaration.name()));
+      }
+      return;
+    }
+
+    spill();
+    reduceToFanIn(declarationRuns, DECLARATIONS);
+    reduceToFanIn(invocationRuns, INVOCATIONS);
+
+    try (MergedRuns<DeclarationRecord> declarations =
+            new MergedRuns<>(paths(declarationRuns), DECLARATIONS);
+        MergedRuns<String> invocations = new MergedRuns<>(paths(invocationRuns), INVOCATIONS)) {
+
+      String invocation = invocations.next();
+      DeclarationRecord declaration;
+      while ((declaration = declarations.next()) != null) {
+        // Both sides are sorted by name, so the invocation cursor only ever moves forward
+        while (invocation != null && invocation.compareTo(declaration.name()) < 0) {
+          invocation = invocations.next();
+        }
+        consumer.accept(declaration, declaration.name().equals(invocation));
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    declarationBuffer.clear();
+    invocationBuffer.clear();
+    declarationRuns.clear();
+    invocationRuns.clear();
+    if (spillDirectory == null) {
+      return;
+    }
+    try (Stream<Path> spilledFiles = Files.list(spillDirectory)) {
+      for (Path spilledFile : (Iterable<Path>) spilledFiles::iterator) {
+        Files.deleteIfExists(spilledFile);
+      }
+    }
+    Files.deleteIfExists(spillDirectory);
+    log.info("Removed spill directory: {}", spillDirectory);
+    spillDirectory = null;
+  }
+
+  private void spillIfNeeded() throws IOException {
+    if (bufferedBytes >= thresholdBytes) {
+      spill();
+    }
+  }
+
+  // Writes the buffered records out as one sorted run per record type and empties the buffers
+  private void spill() throws IOException {
+    if (spillDirectory == null) {
+      spillDirectory = Files.createTempDirectory("parsing-tool-spill");
+      log.info(
+          "Memory threshold of {} bytes reached, spilling to {}", thresholdBytes, spillDirectory);
+    }
+
+    if (!declarationBuffer.isEmpty()) {
+      declarationBuffer.sort(Comparator.comparing(DeclarationRecord::name));
+      Path run = Files.createTempFile(spillDirectory, DECLARATIONS.prefix(), ".run");
+      try (DataOutputStream out = openRun(run)) {
+        out.writeInt(declarationBuffer.size());
+        for (DeclarationRecord declaration : declarationBuffer) {
+          writeDeclaration(out, declaration);
+        }
+      }
+      declarationRuns.add(new SpillRun(run, 0));
+      declarationBuffer.clear();
+      compactIfNeeded(declarationRuns, DECLARATIONS);
+    }
+
+    if (!invocationBuffer.isEmpty()) {
+      Path run = Files.createTempFile(spillDirectory, INVOCATIONS.prefix(), ".run");
+      try (DataOutputStream out = openRun(run)) {
+        out.writeInt(invocationBuffer.size());
+        for (String methodName : new TreeSet<>(invocationBuffer)) {
+          writeString(out, methodName);
+        }
+      }
+      invocationRuns.add(new SpillRun(run, 0));
+      invocationBuffer.clear();
+      compactIfNeeded(invocationRuns, INVOCATIONS);
+    }
+
+    bufferedBytes = 0;
+  }
+
+  // Size-tiered compaction: once the fan-in limit of runs share a level they are merged into one
+  // run of the next level. Older, larger runs are left alone, so a record is rewritten once per
+  // level, about log64 of the number of spills, instead of at every compaction. Levels never
+  // increase from the oldest run to the newest, so the runs of the lowest level are at the end.
+  private <T> void compactIfNeeded(List<SpillRun> runs, RunFormat<T> format) throws IOException {
+    int level = runs.get(runs.size() - 1).level();
+    while (runs.size() >= MAX_MERGE_FAN_IN
+        && runs.get(runs.size() - MAX_MERGE_FAN_IN).level() == level) {
+      mergeNewest(runs, MAX_MERGE_FAN_IN, level + 1, format);
+      level++;
+    }
+  }
+
+  // Up to 63 runs can be left on every level, so before the final merge the newest and smallest
+  // runs are merged until the remaining runs fit in one merge
+  private <T> void reduceToFanIn(List<SpillRun> runs, RunFormat<T> format) throws IOException {
+    while (runs.size() > MAX_MERGE_FAN_IN) {
+      int count = Math.min(MAX_MERGE_FAN_IN, runs.size() - MAX_MERGE_FAN_IN + 1);
+      mergeNewest(runs, count, runs.get(runs.size() - count).level(), format);
+    }
+  }
+
+  // Replaces the newest runs with a single sorted run of the given level
+  private <T> void mergeNewest(List<SpillRun> runs, int count, int level, RunFormat<T> format)
+      throws IOException {
+    List<SpillRun> newest = runs.subList(runs.size() - count, runs.size());
+    Path merged = Files.createTempFile(spillDirectory, format.prefix(), ".run");
+    int written = 0;
+    try (MergedRuns<T> records = new MergedRuns<>(paths(newest), format);
+        DataOutputStream out = openRun(merged)) {
+      out.writeInt(0);
+      T previous = null;
+      T value;
+      while ((value = records.next()) != null) {
+        if (format.distinct() && value.equals(previous)) {
+          continue;
+        }
+        format.writer().write(out, value);
+        previous = value;
+        written++;
+      }
+    }
+    // The record count is only known once the duplicates are dropped
+    try (FileChannel channel = FileChannel.open(merged, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, written), 0);
+    }
+    for (SpillRun run : newest) {
+      Files.deleteIfExists(run.path());
+    }
+    newest.clear();
+    runs.add(new SpillRun(merged, level));
+  }
+
+  private static List<Path> paths(List<SpillRun> runs) {
+    List<Path> paths = new ArrayList<>(runs.size());
+    for (SpillRun run : runs) {
+      paths.add(run.path());
+    }
+    return paths;
+  }
+
+  private static DataOutputStream openRun(Path run) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)));
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeDeclaration(DataOutputStream out, DeclarationRecord declaration)
+      throws IOException {
+    writeString(out, declaration.name());
+    writeString(out, declaration.className());
+    writeString(out, declaration.filePath());
+    writeString(out, declaration.declaration());
+  }
+
+  private static DeclarationRecord readDeclaration(DataInputStream in) throws IOException {
+    return new DeclarationRecord(readString(in), readString(in), readString(in), readString(in));
+  }
+
+  private interface RecordReader<T> {
+    T read(DataInputStream in) throws IOException;
+  }
+
+  private interface RecordWriter<T> {
+    void write(DataOutputStream out, T value) throws IOException;
+  }
+
+  // How the records of one type are stored in and merged across runs
+  private record RunFormat<T>(
+      String prefix,
+      RecordReader<T> reader,
+      RecordWriter<T> writer,
+      Comparator<T> order,
+      boolean distinct) {}
+
+  // A sorted run on disk, a merged run is one level above the runs it was merged from
+  private record SpillRun(Path path, int level) {}
+
+  // A single sorted run being consumed record by record
+  private static class RunCursor<T> implements Closeable {
+    private final DataInputStream in;
+    private final RecordReader<T> reader;
+    private int remaining;
+    private T current;
+
+    RunCursor(Path run, RecordReader<T> reader) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+      this.reader = reader;
+      this.remaining = in.readInt();
+    }
+
+    boolean advance() throws IOException {
+      if (remaining == 0) {
+        current = null;
+        return false;
+      }
+      remaining--;
+      current = reader.read(in);
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  // K-way merge over sorted runs, only holding the head record of each run in memory
+  private static class MergedRuns<T> implements Closeable {
+    private final List<RunCursor<T>> cursors = new ArrayList<>();
+    private final PriorityQueue<RunCursor<T>> heads;
+
+    MergedRuns(List<Path> runs, RunFormat<T> format) throws IOException {
+      heads =
+          new PriorityQueue<>(
+              Math.max(1, runs.size()), (a, b) -> format.order().compare(a.current, b.current));
+      try {
+        for (Path run : runs) {
+          RunCursor<T> cursor = new RunCursor<>(run, format.reader());
+          cursors.add(cursor);
+          if (cursor.advance()) {
+            heads.add(cursor);
+          }
+        }
+      } catch (IOException e) {
+        close();
+        throw e;
+      }
+    }
+
+    T next() throws IOException {
+      RunCursor<T> cursor = heads.poll();
+      if (cursor == null) {
+        return null;
+      }
+      T value = cursor.current;
+      if (cursor.advance()) {
+        heads.add(cursor);
+      }
+      return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+      for (RunCursor<T> cursor : cursors) {
+        cursor.close();
+      }
+    }
+  }
+}
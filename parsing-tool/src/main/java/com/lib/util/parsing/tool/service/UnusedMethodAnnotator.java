@@ -1,510 +1,485 @@
 package com.lib.util.parsing.tool.service;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.stereotype.Service;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParseResult;
-import com.github.javaparser.ParserConfiguration;
-import com.github.javaparser.Problem;
 import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.Modifier;
-import com.github.javaparser.ast.Node;
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.comments.LineComment;
-import com.github.javaparser.ast.expr.AnnotationExpr;
-import com.github.javaparser.ast.expr.LambdaExpr;
-import com.github.javaparser.ast.expr.MethodCallExpr;
-import com.github.javaparser.ast.expr.MethodReferenceExpr;
-import com.github.javaparser.ast.stmt.ExpressionStmt;
-import com.github.javaparser.ast.stmt.ForEachStmt;
-import com.github.javaparser.ast.stmt.IfStmt;
-import com.github.javaparser.ast.type.ClassOrInterfaceType;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import com.cubs.solverlib.model.Manifest;
 import com.cubs.solverlib.model.Rule;
 import com.lib.util.engine.tool.constant.EngineToolConstant;
+import com.lib.util.parsing.tool.service.SpillingMethodAggregator.DeclarationRecord;
 
+// Scan engine for unused methods. The engine holds no per-scan state: every scan works on its own
+// locals, so one instance can run many scans at once. What is shared between scans are the warm
+// caches (parsers per thread, facts per source file, parsed manifests) and the job scheduler.
 @Service
-public class UnusedMethodAnnotator {
+public class UnusedMethodAnnotator implements AutoCloseable {
 
   final Logger log = LogManager.getLogger(UnusedMethodAnnotator.class);
-  private Set<String> invokedMethods = new HashSet<>();
-  private Set<String> getterSetterMethods = new HashSet<>();
-  private Set<String> publicMaps = new HashSet<>();
-  private Set<MethodDeclaration> declaredMethods = new HashSet<>();
-  private Set<String> declaredMethodsIndirectlyInvoked = new HashSet<>();
-  private Set<MethodDeclaration> uninvokedMethods = new HashSet<>();
-
-  private final Set<String> whiteListMethods =
+
+  private static final Set<String> WHITE_LIST_METHODS =
       Set.of("findParamValue", "validateConsumedTypes", "getFqcnClass", "applyCoreFacetChange");
 
-  public String load(String project, Map<String, List<Rule>> firingRules) {
-    UnusedMethodAnnotator annotator = new UnusedMethodAnnotator();
-    try {
-      return annotator.annotateUnusedMethods(project, firingRules);
-    } catch (IOException e) {
-      log.error(e.getMessage());
+  // Parsed manifests are kept for this many paths, the least recently read is dropped first
+  private static final int MAX_CACHED_MANIFESTS = 16;
+
+  // Rewrites of the same file from concurrent scans are serialised on one of these
+  private static final int REWRITE_LOCK_STRIPES = 64;
+
+  private final int parallelism;
+  private final Semaphore jobSlots;
+  private final FileFactCache fileFactCache;
+  private final Map<String, CachedRules> ruleCache =
+      Collections.synchronizedMap(
+          new LinkedHashMap<String, CachedRules>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedRules> eldest) {
+              return size() > MAX_CACHED_MANIFESTS;
+            }
+          });
+  private final Object[] rewriteLocks = new Object[REWRITE_LOCK_STRIPES];
+  private ThreadPoolExecutor executor;
+  private boolean closed;
+
+  private record CachedRules(byte[] digest, Map<String, List<Rule>> firingRules) {}
+
+  // A submitted scan holding one job slot. The slot is given back exactly once: when the scan has
+  // run, or when the job is cancelled before it starts, as a cancelled job is never called.
+  // A scan that is cancelled while running keeps its slot until it actually stops.
+  private final class ScanJob extends FutureTask<ScanResult> {
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    ScanJob(ScanOptions options) {
+      super(() -> scan(options));
     }
-    return null;
-  }
-
-  public String annotateUnusedMethods(String projectPath, Map<String, List<Rule>> firingRules)
-      throws IOException {
-
-    // Parse java files but filter out accordingly for declared and invoked methods
-    try (Stream<Path> javaFilesStream = Files.walk(Path.of(projectPath))) {
-      // Filter for regular Java files (common for both processes)
-      Set<Path> javaFiles =
-          javaFilesStream
-              .filter(Files::isRegularFile)
-              .filter(p -> p.toString().endsWith(EngineToolConstant.JAVA_EXTENSION))
-              .collect(Collectors.toSet());
 
-      // Process declared methods
-      Set<Path> javaFilesForDeclaredMethods =
-          javaFiles
-              .stream()
-              .filter(
-                  p -> {
-                    try {
-                      return !isExcludedFile(p); // Apply exclusion filter only for declared methods
-                    } catch (IOException e) {
-                      log.error(e.getMessage());
-                      return false;
-                    }
-                  })
-              .collect(Collectors.toSet());
-      javaFilesForDeclaredMethods.forEach(this::processFileForDeclaredMethods);
-
-      // Process invoked methods (using the original set without exclusions)
-      javaFiles.forEach(this::processFileForInvokedMethods);
+    @Override
+    public void run() {
+      started.set(true);
+      try {
+        super.run();
+      } finally {
+        releaseSlot();
+      }
     }
 
-    log.info("Methods not invoked:");
-
-    List<String> invokedMethodsInManifest = retrieveAndPrintFiringRules(firingRules);
-
-    invokedMethods.addAll(declaredMethodsIndirectlyInvoked);
-
-    invokedMethods.addAll(whiteListMethods);
-
-    // Check if there are any methods in the manifest file
-    if (!invokedMethodsInManifest.isEmpty()) {
-      // -- Gather declared method names --
-      // Create a set of method names from declared methods for efficient comparison
-      Set<String> declaredMethodNames =
-          declaredMethods
-              .stream()
-              .map(MethodDeclaration::getNameAsString)
-              .collect(Collectors.toSet());
-
-      // Identify methods in manifest but not declared
-      // Create a set to store methods found in manifest but not in code
-      Set<String> methodsInManifestButNotInCode = new HashSet<>(invokedMethodsInManifest);
-      // Remove any methods present in declaredMethodNames
-      methodsInManifestButNotInCode.removeAll(declaredMethodNames);
-
-      // -- Log results --
-      if (!methodsInManifestButNotInCode.isEmpty()) {
-        log.info("Methods found in Manifest but not in Code:");
-        // Iterate through each missing method and log its name
-        methodsInManifestButNotInCode.forEach(
-            methodName -> log.info("Method name: {}", methodName));
-      } else {
-        // Log a message if all methods are declared
-        log.info("All methods from Manifest are Declared.");
+    @Override
+    protected void done() {
+      if (!started.get()) {
+        releaseSlot();
       }
     }
 
-    for (MethodDeclaration methodDeclaration : declaredMethods) {
-      // annotate methods that are not invoked and they are not unit tests
-      if (!invokedMethods.contains(methodDeclaration.getNameAsString())
-          && !getClassNameOfMethod(methodDeclaration).contains("Test")
-          && !invokedMethodsInManifest.contains(methodDeclaration.getNameAsString())) {
-        annotate(methodDeclaration);
-        uninvokedMethods.add(methodDeclaration);
+    private void releaseSlot() {
+      if (released.compareAndSet(false, true)) {
+        jobSlots.release();
       }
     }
-
-    StringBuilder sb = new StringBuilder("Class name loaded:");
-
-    uninvokedMethods.stream().forEach(method -> log.info(method.getNameAsString()));
-
-    uninvokedMethods.forEach(
-        method -> {
-          sb.append(System.lineSeparator());
-          sb.append(getClassNameOfMethod(method));
-          sb.append(System.lineSeparator());
-          sb.append(method);
-          Path filePath = method.findCompilationUnit().get().getStorage().get().getPath();
-          try {
-            String content = readFile(filePath.toString());
-
-            // Annotate the method and preserve formatting
-            String updatedContent =
-                annotateMethod(
-                    content,
-                    method.getNameAsString(),
-                    "Deprecated()",
-                    "Deprecated by XWJ Backend Tool");
-
-            // Write the updated content to the file
-            writeFile(filePath.toString(), updatedContent);
-          } catch (Exception e) {
-            log.error(e.getMessage());
-          }
-        });
-
-    publicMaps.forEach(
-        variable -> {
-          sb.append(System.lineSeparator());
-          sb.append(variable);
-          sb.append(System.lineSeparator());
-        });
-    return sb.toString();
   }
 
-  // Helper method for exclusion logic
-  private boolean isExcludedFile(Path path) throws IOException {
-    List<String> exclusionPatterns =
-        Arrays.asList("Application.java", "extends JpaRepository<", "interface");
+  private static final class ScanWorker extends Thread {
+    ScanWorker(Runnable runnable, String name) {
+      super(runnable, name);
+      setDaemon(true);
+    }
+  }
 
-    return containsTheseExtensions(path, exclusionPatterns);
+  public UnusedMethodAnnotator() {
+    this(
+        Integer.getInteger("parsing.tool.scan.threads", Runtime.getRuntime().availableProcessors()),
+        Integer.getInteger("parsing.tool.scan.queue", 64),
+        Long.getLong("parsing.tool.fact.cache.bytes", 128L * 1024 * 1024));
   }
 
-  private boolean containsTheseExtensions(Path filePath, List<String> extensions)
-      throws IOException {
-    try (Stream<String> lines = Files.lines(filePath)) {
-      return lines
-          .flatMap(line -> extensions.stream().filter(line::contains))
-          .findAny()
-          .isPresent(); // Check if any line matches any pattern
+  // parallelism scans run at once and at most queueCapacity more wait for a thread, submit
+  // blocks beyond that. A factCacheBytes of 0 disables the per-file fact cache. Only scans that
+  // keep their records in memory use the cache: spilling scans bypass it, so their spill
+  // threshold stays the bound on the records they hold.
+  public UnusedMethodAnnotator(int parallelism, int queueCapacity, long factCacheBytes) {
+    if (parallelism <= 0 || queueCapacity < 0) {
+      throw new IllegalArgumentException(
+          "Invalid scheduler bounds: parallelism " + parallelism + ", queue " + queueCapacity);
+    }
+    this.parallelism = parallelism;
+    this.jobSlots = new Semaphore(parallelism + queueCapacity);
+    this.fileFactCache = new FileFactCache(factCacheBytes);
+    for (int i = 0; i < rewriteLocks.length; i++) {
+      rewriteLocks[i] = new Object();
     }
   }
 
-  // This method is to filter process each file path and filter out the invoked methods
-  private void processFileForInvokedMethods(Path filePath) {
+  public String load(String project, Map<String, List<Rule>> firingRules) {
     try {
-
-      final ParserConfiguration parserConfiguration = new ParserConfiguration();
-
-      parserConfiguration.setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17);
-
-      JavaParser javaParser = new JavaParser(parserConfiguration);
-
-      ParseResult<CompilationUnit> result = javaParser.parse(filePath);
-      if (result.isSuccessful()) {
-        CompilationUnit cu = result.getResult().orElse(null);
-        if (cu != null) {
-          MethodInvocationVisitor methodInvocationVisitor = new MethodInvocationVisitor();
-          methodInvocationVisitor.visit(cu, null);
-        }
-      } else {
-        log.error("Parsing failed for: {}", filePath);
-        List<Problem> problems = result.getProblems();
-        for (Problem problem : problems) {
-          log.error("Error: {}", problem);
-        }
-      }
+      return annotateUnusedMethods(project, firingRules);
     } catch (IOException e) {
-      log.error("Error processing file: {}", filePath);
+      log.error(e.getMessage());
     }
+    return null;
   }
 
-  // This method is to filter process each file path and filter out the invoked methods
-  private void processFileForDeclaredMethods(Path filePath) {
-    try {
-
-      final ParserConfiguration parserConfiguration = new ParserConfiguration();
-
-      getterSetterMethods = new HashSet<>();
+  public String annotateUnusedMethods(String projectPath, Map<String, List<Rule>> firingRules)
+      throws IOException {
+    return scan(defaultOptions(projectPath, firingRules)).report();
+  }
 
-      parserConfiguration.setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17);
+  // Options for load and annotateUnusedMethods, configured through system properties
+  private ScanOptions defaultOptions(String projectPath, Map<String, List<Rule>> firingRules) {
+    if (firingRules != null) {
+      printFiringRules(firingRules);
+    }
+    return new ScanOptions(
+        projectPath,
+        ScanOptions.manifestMethodsOf(firingRules),
+        ParseProfile.fromName(System.getProperty("parsing.tool.parse.profile")),
+        Long.getLong("parsing.tool.spill.threshold.bytes", 0L));
+  }
 
-      JavaParser javaParser = new JavaParser(parserConfiguration);
+  // Queues a scan on the engine's worker threads, blocking while the scheduler is full
+  public Future<ScanResult> submit(ScanOptions options) throws InterruptedException {
+    ExecutorService jobs = executor();
+    jobSlots.acquire();
+    ScanJob job = new ScanJob(options);
+    try {
+      jobs.execute(job);
+    } catch (RejectedExecutionException e) {
+      jobSlots.release();
+      throw e;
+    }
+    return job;
+  }
 
-      ParseResult<CompilationUnit> result = javaParser.parse(filePath);
-      if (result.isSuccessful()) {
-        CompilationUnit cu = result.getResult().orElse(null);
-        if (cu != null) {
-          GetterVariableDetector getterVariableDetector = new GetterVariableDetector();
-          getterVariableDetector.visit(cu, null);
-          MethodDeclarationVisitor methodDeclarationVisitor = new MethodDeclarationVisitor();
-          methodDeclarationVisitor.visit(cu, null);
-        }
-      } else {
-        log.error("Parsing failed for: {}", filePath);
-        List<Problem> problems = result.getProblems();
-        for (Problem problem : problems) {
-          log.error("Error: {}", problem);
-        }
+  // Runs a scan on the calling thread
+  public ScanResult scan(ScanOptions options) throws IOException {
+    log.info("Scanning project: {}", options.projectPath());
+    try (SpillingMethodAggregator aggregator =
+        new SpillingMethodAggregator(
+            options.spillThresholdBytes() > 0 ? options.spillThresholdBytes() : Long.MAX_VALUE)) {
+      Set<String> publicMaps = new HashSet<>();
+      collectFacts(options, aggregator, publicMaps);
+      return reportUnusedMethods(options, aggregator, publicMaps);
+    } finally {
+      // Only the engine's own workers keep their parsers warm between scans
+      if (!(Thread.currentThread() instanceof ScanWorker)) {
+        ParseProfile.releaseParsers();
       }
-    } catch (IOException e) {
-      log.error("Error processing file: {}", filePath);
     }
   }
 
-  public class GetterVariableDetector extends VoidVisitorAdapter<Void> {
-
-    private Map<String, String> declaredFields = new HashMap<>();
-
-    @Override
-    public void visit(FieldDeclaration n, Void arg) {
-      super.visit(n, arg);
-
-      if (n.getModifiers().contains(Modifier.publicModifier())
-          && n.getModifiers().contains(Modifier.staticModifier())
-          && n.getElementType() instanceof ClassOrInterfaceType
-          && ((ClassOrInterfaceType) n.getElementType()).getName().asString().equals("Map")) {
-        publicMaps.add(
-            "Found public static Map variable: "
-                + n.getVariables().get(0).getName()
-                + " in file "
-                + getClassNameOfField(n));
-      }
+  int availableJobSlots() {
+    return jobSlots.availablePermits();
+  }
 
-      for (VariableDeclarator var : n.getVariables()) {
+  long cachedFactBytes() {
+    return fileFactCache.bytes();
+  }
 
-        declaredFields.put(var.getNameAsString(), var.getType().asString());
-      }
-    }
+  // Drops all cached file facts and manifests, the next scans start cold
+  public void clearCaches() {
+    fileFactCache.clear();
+    ruleCache.clear();
+  }
 
-    @Override
-    public void visit(MethodDeclaration n, Void arg) {
-      super.visit(n, arg);
-
-      String methodName = n.getNameAsString();
-      if (isGetterOrSetter(methodName)) {
-        String potentialFieldName = getFieldNameFromGetterSetter(methodName);
-        if (declaredFields.containsKey(potentialFieldName)) {
-          // Getter has a corresponding variable declared:
-          String fieldType = declaredFields.get(potentialFieldName);
-          // You can access additional information like field type here
-          getterSetterMethods.add(methodName);
-          log.info(
-              "Method: {} has corresponding variable:{} (type:{})",
-              methodName,
-              potentialFieldName,
-              fieldType);
-        }
-      }
+  // Stops accepting scans and waits for the running ones, so no rewrite is cut off halfway
+  @Override
+  public void close() {
+    ThreadPoolExecutor jobs;
+    synchronized (this) {
+      closed = true;
+      jobs = executor;
     }
-
-    private boolean isGetterOrSetter(String methodName) {
-      return methodName.startsWith(EngineToolConstant.GET)
-          || methodName.startsWith(EngineToolConstant.SET)
-          || methodName.startsWith(EngineToolConstant.INIT)
-          || methodName.startsWith(EngineToolConstant.IS);
+    if (jobs == null) {
+      return;
     }
-
-    private String getFieldNameFromGetterSetter(String methodName) {
-      String fieldName = "";
-      
-      if (methodName.startsWith(EngineToolConstant.GET) && methodName.length() > 3) {
-        fieldName = methodName.substring(3);
-      } else if (methodName.startsWith(EngineToolConstant.SET) && methodName.length() > 3) {
-        fieldName = methodName.substring(3);
-      } else if (methodName.startsWith(EngineToolConstant.INIT) && methodName.length() > 4) {
-        fieldName = methodName.substring(4);
-      } else if (methodName.startsWith(EngineToolConstant.IS) && methodName.length() > 2) {
-        fieldName = methodName.substring(2);
-      } else {
-        fieldName = methodName; // No change if prefix not found
+    jobs.shutdown();
+    try {
+      while (!jobs.awaitTermination(1, TimeUnit.MINUTES)) {
+        log.info("Waiting for running scans to finish");
       }
-
-      return fieldName.substring(0, 1).toLowerCase()
-          + fieldName.substring(1); // Lowercase first letter
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
   }
 
-  // This method is to filter all methods within the project that is declared
-  private class MethodDeclarationVisitor extends VoidVisitorAdapter<Void> {
-    @Override
-    public void visit(MethodDeclaration methodDeclaration, Void arg) {
-      super.visit(methodDeclaration, arg);
-
-      if (!isMethodReturningSelfForDesignPatternImplementation(methodDeclaration)
-          && !getterSetterMethods.contains(methodDeclaration.getNameAsString())) {
-        // to white list a method that is invoked via spring annotations
-        if (indirectMethodInvokedThruAnnotation(methodDeclaration)) {
-          declaredMethodsIndirectlyInvoked.add(methodDeclaration.getNameAsString());
-        }
-        declaredMethods.add(methodDeclaration);
-      }
+  private synchronized ExecutorService executor() {
+    if (closed) {
+      throw new IllegalStateException("Scan engine has been closed");
     }
-    
-    private boolean isMethodReturningSelfForDesignPatternImplementation(
-        MethodDeclaration methodDeclaration) {
-      String returnType = methodDeclaration.getType().toString();
-      String className = getClassNameOfMethod(methodDeclaration);
-
-      // Check if return type matches class name
-      return returnType.equals(className);
+    if (executor == null) {
+      AtomicInteger threadCount = new AtomicInteger();
+      executor =
+          new ThreadPoolExecutor(
+              parallelism,
+              parallelism,
+              0L,
+              TimeUnit.MILLISECONDS,
+              new LinkedBlockingQueue<>(),
+              runnable ->
+                  new ScanWorker(runnable, "parsing-tool-scan-" + threadCount.incrementAndGet()));
     }
+    return executor;
   }
 
-  // This method is to filter all methods within the project that is invoked
-  private class MethodInvocationVisitor extends VoidVisitorAdapter<Void> {
-    @Override
-    public void visit(MethodCallExpr methodCallExpr, Void arg) {
-      super.visit(methodCallExpr, arg);
+  private void collectFacts(
+      ScanOptions options, SpillingMethodAggregator aggregator, Set<String> publicMaps)
+      throws IOException {
+    List<Path> javaFiles;
+    try (Stream<Path> javaFilesStream = Files.walk(Path.of(options.projectPath()))) {
+      // Filter for regular Java files
+      javaFiles =
+          javaFilesStream
+              .filter(Files::isRegularFile)
+              .filter(p -> p.toString().endsWith(EngineToolConstant.JAVA_EXTENSION))
+              .sorted()
+              .collect(Collectors.toList());
+    }
 
-      invokedMethods.add(methodCallExpr.getNameAsString());
-      if (methodCallExpr.getScope().isPresent()) {
-        methodCallExpr.getScope().get().accept(this, arg); // Visit the scope (expression)
+    boolean spilling = options.spillThresholdBytes() > 0;
+    for (Path javaFile : javaFiles) {
+      byte[] content;
+      try {
+        content = Files.readAllBytes(javaFile);
+      } catch (IOException e) {
+        // e.g. deleted or moved since the walk, the rest of the project is still scanned
+        log.error("Error processing file: {}", javaFile);
+        continue;
+      }
+      Supplier<FileFacts> extractor =
+          () ->
+              FileFactExtractor.extract(
+                  javaFile, new String(content, StandardCharsets.UTF_8), options.parseProfile());
+      FileFacts facts =
+          spilling ? extractor.get() : fileFactCache.get(javaFile, content, extractor);
+      for (DeclarationRecord declaration : facts.declarations()) {
+        aggregator.addDeclaration(declaration);
       }
+      for (String invocation : facts.invocations()) {
+        aggregator.addInvocation(invocation);
+      }
+      publicMaps.addAll(facts.publicMaps());
     }
+  }
 
-    @Override
-    public void visit(ExpressionStmt expressionStmt, Void arg) {
-      super.visit(expressionStmt, arg);
-      expressionStmt.getExpression().accept(this, arg); // Visit the expression
-    }
+  private ScanResult reportUnusedMethods(
+      ScanOptions options, SpillingMethodAggregator aggregator, Set<String> publicMaps)
+      throws IOException {
 
-    @Override
-    public void visit(IfStmt ifStmt, Void arg) {
-      super.visit(ifStmt, arg);
-      ifStmt.getThenStmt().accept(this, arg);
-      ifStmt.getCondition().accept(this, arg);
-      if (ifStmt.getElseStmt().isPresent()) {
-        ifStmt.getElseStmt().get().accept(this, arg); // Visit the scope (expression)
-      }
-    }
+    log.info("Methods not invoked:");
 
-    @Override
-    public void visit(LambdaExpr lambdaExpr, Void arg) {
-      // Handle lambda expressions
-      super.visit(lambdaExpr, arg);
-      lambdaExpr.getBody().accept(this, arg);
-    }
+    Set<String> invokedMethodsInManifest = options.manifestMethods();
+    Set<String> methodsInManifestButNotInCode = new HashSet<>(invokedMethodsInManifest);
+    List<String> unusedMethods = new ArrayList<>();
+    boolean spilling = options.spillThresholdBytes() > 0;
+    List<DeclarationRecord> unusedDeclarations = new ArrayList<>();
 
-    @Override
-    public void visit(ForEachStmt forEachStmt, Void arg) {
-      // Handle lambda expressions
-      super.visit(forEachStmt, arg);
-      forEachStmt.getBody().accept(this, arg);
+    StringBuilder sb = new StringBuilder("Class name loaded:");
+
+    aggregator.mergeJoin(
+        (declaration, invoked) -> {
+          methodsInManifestButNotInCode.remove(declaration.name());
+
+          // annotate methods that are not invoked and they are not unit tests
+          if (!invoked
+              && !WHITE_LIST_METHODS.contains(declaration.name())
+              && !declaration.className().contains("Test")
+              && !invokedMethodsInManifest.contains(declaration.name())) {
+            if (!spilling) {
+              unusedDeclarations.add(declaration);
+              return;
+            }
+            // Spilling mode streams the report and only lists the method signatures
+            log.info(declaration.name());
+            unusedMethods.add(declaration.className() + "." + declaration.name());
+            sb.append(System.lineSeparator());
+            sb.append(declaration.className());
+            sb.append(System.lineSeparator());
+            sb.append(declaration.declaration());
+            annotateMethodInFile(declaration.filePath(), declaration.name());
+          }
+        });
+
+    if (!spilling) {
+      reportFullSource(unusedDeclarations, sb, unusedMethods);
     }
 
-    @Override
-    public void visit(MethodReferenceExpr methodReferenceExpr, Void arg) {
-      // Handle method references
-      super.visit(methodReferenceExpr, arg);
-      invokedMethods.add(methodReferenceExpr.getIdentifier());
+    if (!invokedMethodsInManifest.isEmpty()) {
+      logMethodsInManifestButNotInCode(methodsInManifestButNotInCode);
     }
+    if (aggregator.getSpilledRunCount() > 0) {
+      log.info("Spilled runs used for aggregation: {}", aggregator.getSpilledRunCount());
+    }
+
+    publicMaps.forEach(
+        variable -> {
+          sb.append(System.lineSeparator());
+          sb.append(variable);
+          sb.append(System.lineSeparator());
+        });
+    return new ScanResult(
+        options.projectPath(),
+        sb.toString(),
+        unusedMethods,
+        methodsInManifestButNotInCode,
+        new ArrayList<>(publicMaps));
   }
 
-  // This method is to annotate unused methods with the annotation 'Deprecated'
-  public void annotate(MethodDeclaration md) {
-    md.addAnnotation(EngineToolConstant.DEPRECATE);
-    md.setComment(new LineComment(EngineToolConstant.COMMENT));
+  // The in-memory report lists the full source of every unused method, annotated the way it is
+  // deprecated, in the order of a hash map over the method nodes. As before, structurally
+  // identical methods are listed once, but every copy is deprecated. The facts hold no AST, so
+  // only the files with unused methods are parsed again, with the FULL profile.
+  private void reportFullSource(
+      List<DeclarationRecord> unusedDeclarations, StringBuilder sb, List<String> unusedMethods) {
+    Map<String, List<DeclarationRecord>> unusedByFile =
+        unusedDeclarations
+            .stream()
+            .collect(
+                Collectors.groupingBy(
+                    DeclarationRecord::filePath, LinkedHashMap::new, Collectors.toList()));
+
+    Map<MethodDeclaration, DeclarationRecord> uninvokedMethods = new HashMap<>();
+    List<DeclarationRecord> duplicates = new ArrayList<>();
+    List<DeclarationRecord> unmatched = new ArrayList<>();
+    unusedByFile.forEach(
+        (filePath, declarations) -> {
+          List<DeclarationRecord> pending = new ArrayList<>(declarations);
+          for (MethodDeclaration method : parseFull(filePath)) {
+            Optional<DeclarationRecord> match =
+                pending
+                    .stream()
+                    .filter(
+                        declaration ->
+                            declaration.name().equals(method.getNameAsString())
+                                && declaration.className().equals(
+                                    FileFactExtractor.classNameOf(method))
+                                && declaration.declaration().equals(
+                                    method.getDeclarationAsString()))
+                    .findFirst();
+            if (match.isPresent()) {
+              pending.remove(match.get());
+              annotate(method);
+              if (uninvokedMethods.putIfAbsent(method, match.get()) != null) {
+                duplicates.add(match.get());
+              }
+            }
+          }
+          unmatched.addAll(pending);
+        });
+
+    uninvokedMethods.keySet().forEach(method -> log.info(method.getNameAsString()));
+
+    uninvokedMethods.forEach(
+        (method, declaration) -> {
+          unusedMethods.add(declaration.className() + "." + declaration.name());
+          sb.append(System.lineSeparator());
+          sb.append(declaration.className());
+          sb.append(System.lineSeparator());
+          sb.append(method);
+          annotateMethodInFile(declaration.filePath(), declaration.name());
+        });
+
+    duplicates.forEach(
+        declaration -> {
+          unusedMethods.add(declaration.className() + "." + declaration.name());
+          annotateMethodInFile(declaration.filePath(), declaration.name());
+        });
+
+    // Files that changed since their facts were extracted fall back to the signature
+    unmatched.forEach(
+        declaration -> {
+          log.info(declaration.name());
+          unusedMethods.add(declaration.className() + "." + declaration.name());
+          sb.append(System.lineSeparator());
+          sb.append(declaration.className());
+          sb.append(System.lineSeparator());
+          sb.append(declaration.declaration());
+          annotateMethodInFile(declaration.filePath(), declaration.name());
+        });
   }
 
-  // This method is to white list methods that are invoked by spring annotations
-  private static boolean indirectMethodInvokedThruAnnotation(MethodDeclaration method) {
-    // Create a whitelist of allowed annotations
-    Set<String> allowedAnnotations = new HashSet<>();
-    allowedAnnotations.add("Bean");
-    allowedAnnotations.add("Override");
-    allowedAnnotations.add("PostConstruct");
-    allowedAnnotations.add("Before");
-    allowedAnnotations.add("After");
-    allowedAnnotations.add("Around");
-    allowedAnnotations.add("RequestMapping");
-    allowedAnnotations.add("GetMapping");
-    allowedAnnotations.add("PostMapping");
-    allowedAnnotations.add("PutMapping");
-    allowedAnnotations.add("PatchMapping");
-    allowedAnnotations.add("DeleteMapping");
-    allowedAnnotations.add("BeforeEach");
-    allowedAnnotations.add("Named");
-    allowedAnnotations.add("PreDestroy");
-    allowedAnnotations.add("Deprecated");
-    allowedAnnotations.add("Value");
-    allowedAnnotations.add("Scheduled");
-    allowedAnnotations.add("JsonIgnore");
-    allowedAnnotations.add("Query");
-    allowedAnnotations.add("Setup");
-
-    // Add more annotations to the whitelist as needed
-
-    for (AnnotationExpr annotation : method.getAnnotations()) {
-      String annotationName = annotation.getNameAsString();
-
-      for (String allowedAnnotation : allowedAnnotations) {
-        if (annotationName.contains(allowedAnnotation)) {
-          return true;
-        }
+  private List<MethodDeclaration> parseFull(String filePath) {
+    try {
+      ParseResult<CompilationUnit> result = ParseProfile.FULL.parser().parse(Path.of(filePath));
+      if (result.isSuccessful() && result.getResult().isPresent()) {
+        return result.getResult().get().findAll(MethodDeclaration.class);
       }
+      log.error("Parsing failed for: {}", filePath);
+    } catch (IOException e) {
+      log.error("Error processing file: {}", filePath);
     }
-    return false;
+    return List.of();
   }
 
-  // This method is to get the class name of the method
-  private String getClassNameOfMethod(MethodDeclaration method) {
-    // Get the parent node
-    Optional<Node> parent = method.getParentNode();
-
-    // Check if the parent is a ClassOrInterfaceDeclaration
-    if (parent.get() instanceof ClassOrInterfaceDeclaration) {
-      ClassOrInterfaceDeclaration classDecl = (ClassOrInterfaceDeclaration) parent.get();
-
-      // Get the class name as a string
-      String className = classDecl.getNameAsString();
-
-      // Use the className as needed
-      log.info("Method {} resides in class: {}", method.getNameAsString(), className);
-      return className;
+  private void logMethodsInManifestButNotInCode(Set<String> methodsInManifestButNotInCode) {
+    // -- Log results --
+    if (!methodsInManifestButNotInCode.isEmpty()) {
+      log.info("Methods found in Manifest but not in Code:");
+      // Iterate through each missing method and log its name
+      methodsInManifestButNotInCode.forEach(methodName -> log.info("Method name: {}", methodName));
     } else {
-      // Handle the case where the enclosing type is not a class or interface
-      log.info("Method declared in a non class");
-      return "Method declared in a non class";
+      // Log a message if all methods are declared
+      log.info("All methods from Manifest are Declared.");
     }
   }
 
-  private String getClassNameOfField(FieldDeclaration field) {
-    // Get the parent node
-    Optional<Node> parent = field.getParentNode();
+  private void annotateMethodInFile(String filePath, String methodName) {
+    Path path = Path.of(filePath).toAbsolutePath().normalize();
+    synchronized (rewriteLocks[Math.floorMod(path.hashCode(), rewriteLocks.length)]) {
+      try {
+        String content = readFile(filePath);
 
-    // Check if the parent is a ClassOrInterfaceDeclaration
-    if (parent.get() instanceof ClassOrInterfaceDeclaration) {
-      ClassOrInterfaceDeclaration classDecl = (ClassOrInterfaceDeclaration) parent.get();
+        // Annotate the method and preserve formatting
+        String updatedContent =
+            annotateMethod(content, methodName, "Deprecated()", "Deprecated by XWJ Backend Tool");
 
-      // Get the class name as a string
-      String className = classDecl.getNameAsString();
-
-      // Use the className as needed
-      log.info("Field {} resides in class: {}", field.getVariable(0).getNameAsString(), className);
-      return className;
-    } else {
-      // Handle the case where the enclosing type is not a class or interface
-      log.info("Field declared in a non class");
-      return "Field declared in a non class";
+        // Write the updated content to the file
+        writeFile(filePath, updatedContent);
+      } catch (Exception e) {
+        log.error(e.getMessage());
+      }
     }
   }
 
+  // This method is to annotate unused methods with the annotation 'Deprecated'
+  public void annotate(MethodDeclaration md) {
+    md.addAnnotation(EngineToolConstant.DEPRECATE);
+    md.setComment(new LineComment(EngineToolConstant.COMMENT));
+  }
+
   private static String readFile(String filePath) throws IOException {
     return new String(Files.readAllBytes(Paths.get(filePath)));
   }
@@ -572,22 +547,45 @@ public class UnusedMethodAnnotator {
     return indent;
   }
 
+  // The content goes to a sibling temp file which then replaces the original in one move, so
+  // concurrent scans reading the file see the old or the new content but never a partial write
   private static void writeFile(String filePath, String content) throws IOException {
-    Files.write(Paths.get(filePath), content.getBytes());
+    Path target = Paths.get(filePath).toAbsolutePath();
+    Path temp =
+        Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+    try {
+      try {
+        Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+      } catch (UnsupportedOperationException e) {
+        // Not a POSIX file system, the temp file keeps the default permissions
+      }
+      Files.write(temp, content.getBytes());
+      Files.move(
+          temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
   }
 
   public Map<String, List<Rule>> readRules(String filename) {
+    File file = new File(filename);
+
     Map<String, List<Rule>> firingRules = new HashMap<>();
     var mapper = new ObjectMapper();
 
     try {
-      File file = new File(filename);
-
-      var rulesStream = new FileInputStream(file);
+      byte[] content = Files.readAllBytes(file.toPath());
+      byte[] digest = ContentDigest.of(content);
+
+      // Manifests are parsed once and reused while their content is unchanged. The Rule
+      // instances are shared with later callers and must not be modified.
+      CachedRules cachedRules = ruleCache.get(file.getAbsolutePath());
+      if (cachedRules != null && ContentDigest.matches(cachedRules.digest(), digest)) {
+        return copyOfRules(cachedRules.firingRules());
+      }
 
-      var manifest = mapper.readValue(rulesStream, Manifest.class);
+      var manifest = mapper.readValue(content, Manifest.class);
 
-      rulesStream.close();
       for (var rule : manifest.getRules()) {
         for (var element : rule.getMethods()) {
           if (firingRules.containsKey(element.getName())) {
@@ -600,36 +598,35 @@ public class UnusedMethodAnnotator {
         }
       }
 
-      retrieveAndPrintFiringRules(firingRules);
+      printFiringRules(firingRules);
 
+      ruleCache.put(file.getAbsolutePath(), new CachedRules(digest, copyOfRules(firingRules)));
     } catch (Exception ex) {
       log.error(ex.getMessage());
     }
     return firingRules;
   }
 
-  private List<String> retrieveAndPrintFiringRules(Map<String, List<Rule>> firingRules) {
+  private static Map<String, List<Rule>> copyOfRules(Map<String, List<Rule>> firingRules) {
+    Map<String, List<Rule>> copy = new HashMap<>();
+    firingRules.forEach((methodName, rules) -> copy.put(methodName, new ArrayList<>(rules)));
+    return copy;
+  }
 
-    List<String> listOfInvokedMethodsInManifest = new ArrayList<>();
+  // Logs every rule with the methods it fires, the names a scan uses come from
+  // ScanOptions.manifestMethodsOf
+  private void printFiringRules(Map<String, List<Rule>> firingRules) {
     firingRules
-        .entrySet()
+        .values()
         .stream()
         // Flatten rule categories into a single stream of rules
-        .flatMap(entry -> entry.getValue().stream())
-        // Extract methods for each rule and process directly
-        .map(
+        .flatMap(List::stream)
+        .forEach(
             rule ->
                 rule.getMethods()
-                    .stream()
-                    .peek(method -> listOfInvokedMethodsInManifest.add(method.getName()))
-                    .peek(
+                    .forEach(
                         method ->
-                            log.info("Rule: {}, Method: {}", rule.getName(), method.getName()))
-                    .collect(Collectors.toList()))
-        // Combine rule method lists for potential further processing
-        .collect(Collectors.toList());
-
-    return listOfInvokedMethodsInManifest;
+                            log.info("Rule: {}, Method: {}", rule.getName(), method.getName())));
   }
 
   public String retrieveFilePathOfManifest(String projectPath) {
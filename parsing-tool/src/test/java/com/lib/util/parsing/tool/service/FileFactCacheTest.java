@@ -0,0 +1,113 @@
+package com.lib.util.parsing.tool.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+import com.lib.util.parsing.tool.service.SpillingMethodAggregator.DeclarationRecord;
+
+class FileFactCacheTest {
+
+  private static final Path FOO = Path.of("src", "Foo.java");
+  private static final Path BAR = Path.of("src", "Bar.java");
+  private static final Path BAZ = Path.of("src", "Baz.java");
+
+  private final AtomicInteger extractions = new AtomicInteger();
+
+  @Test
+  void reusesFactsWhileContentIsUnchanged() {
+    FileFactCache cache = new FileFactCache(1 << 20);
+
+    FileFacts first = cache.get(FOO, bytes("class Foo {}"), extractor("foo"));
+    FileFacts second = cache.get(FOO, bytes("class Foo {}"), extractor("foo"));
+
+    assertSame(first, second);
+    assertEquals(1, extractions.get());
+  }
+
+  @Test
+  void sharesEntriesBetweenSpellingsOfThePath() {
+    FileFactCache cache = new FileFactCache(1 << 20);
+
+    cache.get(FOO, bytes("class Foo {}"), extractor("foo"));
+    Path sameFile = Path.of("src", ".", "Foo.java").toAbsolutePath();
+    cache.get(sameFile, bytes("class Foo {}"), extractor("foo"));
+
+    assertEquals(1, extractions.get());
+  }
+
+  @Test
+  void extractsAgainAfterRewrite() {
+    FileFactCache cache = new FileFactCache(1 << 20);
+
+    cache.get(FOO, bytes("class Foo { void a() {} }"), extractor("a"));
+    FileFacts rewritten =
+        cache.get(FOO, bytes("class Foo { @Deprecated void a() {} }"), extractor("b"));
+
+    assertEquals(2, extractions.get());
+    assertEquals("b", rewritten.declarations().get(0).name());
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedByBytes() {
+    long entryBytes = facts("x").estimatedBytes();
+    FileFactCache cache = new FileFactCache(2 * entryBytes);
+
+    cache.get(FOO, bytes("foo"), extractor("x"));
+    cache.get(BAR, bytes("bar"), extractor("x"));
+    // Foo becomes the most recently used entry, Bar goes when Baz comes in
+    cache.get(FOO, bytes("foo"), extractor("x"));
+    cache.get(BAZ, bytes("baz"), extractor("x"));
+    assertEquals(3, extractions.get());
+
+    cache.get(FOO, bytes("foo"), extractor("x"));
+    assertEquals(3, extractions.get());
+    cache.get(BAR, bytes("bar"), extractor("x"));
+    assertEquals(4, extractions.get());
+  }
+
+  @Test
+  void cachesNothingWithoutBytes() {
+    FileFactCache cache = new FileFactCache(0);
+
+    cache.get(FOO, bytes("class Foo {}"), extractor("foo"));
+    cache.get(FOO, bytes("class Foo {}"), extractor("foo"));
+
+    assertEquals(2, extractions.get());
+  }
+
+  @Test
+  void clearDropsAllEntries() {
+    FileFactCache cache = new FileFactCache(1 << 20);
+
+    cache.get(FOO, bytes("class Foo {}"), extractor("foo"));
+    cache.clear();
+    cache.get(FOO, bytes("class Foo {}"), extractor("foo"));
+
+    assertEquals(2, extractions.get());
+  }
+
+  private Supplier<FileFacts> extractor(String methodName) {
+    return () -> {
+      extractions.incrementAndGet();
+      return facts(methodName);
+    };
+  }
+
+  private static FileFacts facts(String methodName) {
+    return new FileFacts(
+        List.of(new DeclarationRecord(methodName, "Foo", "Foo.java", "void " + methodName + "()")),
+        Set.of(),
+        List.of());
+  }
+
+  private static byte[] bytes(String content) {
+    return content.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,96 @@
+package com.lib.util.parsing.tool.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+
+// Parse throughput of the parse profiles over a source tree, run with
+//   ./gradlew parseBenchmark -Pcorpus=/path/to/sources [-Prounds=9]
+// Each round parses the whole corpus once per variant, rotating the order of the variants.
+// Reported are the median round time and the number of method declarations found.
+public class ParseProfileBenchmark {
+
+  private interface Variant {
+    long parse(Path file) throws IOException;
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path corpus = Path.of(args.length > 0 ? args[0] : ".");
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+
+    List<Path> javaFiles;
+    try (Stream<Path> files = Files.walk(corpus)) {
+      javaFiles =
+          files
+              .filter(Files::isRegularFile)
+              .filter(p -> p.toString().endsWith(".java"))
+              .sorted()
+              .collect(Collectors.toList());
+    }
+
+    Map<String, Variant> variants = new LinkedHashMap<>();
+    // What both parse methods did before the profiles: a new default parser per file
+    variants.put(
+        "per-file default",
+        file -> {
+          ParserConfiguration parserConfiguration = new ParserConfiguration();
+          parserConfiguration.setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17);
+          return countMethods(new JavaParser(parserConfiguration).parse(file));
+        });
+    variants.put("FULL", file -> countMethods(ParseProfile.FULL.parser().parse(file)));
+    variants.put("SCAN", file -> countMethods(ParseProfile.SCAN.parser().parse(file)));
+
+    List<String> names = new ArrayList<>(variants.keySet());
+    Map<String, List<Long>> timings = new LinkedHashMap<>();
+    Map<String, Long> methods = new LinkedHashMap<>();
+    names.forEach(name -> timings.put(name, new ArrayList<>()));
+
+    // Two warm-up rounds are not recorded
+    for (int round = -2; round < rounds; round++) {
+      for (String name : names) {
+        long start = System.nanoTime();
+        long found = 0;
+        for (Path file : javaFiles) {
+          found += variants.get(name).parse(file);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (round >= 0) {
+          timings.get(name).add(elapsed);
+          methods.put(name, found);
+        }
+      }
+      Collections.rotate(names, 1);
+    }
+
+    System.out.printf("%d files, %d rounds%n", javaFiles.size(), rounds);
+    for (String name : variants.keySet()) {
+      List<Long> sorted = new ArrayList<>(timings.get(name));
+      Collections.sort(sorted);
+      long median = sorted.get(sorted.size() / 2);
+      System.out.printf(
+          "%-18s median %6d ms  %7.0f files/s  min %6d ms  max %6d ms  methods %d%n",
+          name,
+          median / 1_000_000,
+          javaFiles.size() * 1e9 / median,
+          sorted.get(0) / 1_000_000,
+          sorted.get(sorted.size() - 1) / 1_000_000,
+          methods.get(name));
+    }
+  }
+
+  private static long countMethods(ParseResult<CompilationUnit> result) {
+    return result.getResult().map(cu -> cu.findAll(MethodDeclaration.class).size()).orElse(0);
+  }
+}
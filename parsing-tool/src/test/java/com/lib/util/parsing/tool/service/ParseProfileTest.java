@@ -0,0 +1,73 @@
+package com.lib.util.parsing.tool.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+
+class ParseProfileTest {
+
+  private static final String SOURCE = "class Foo {\n  // note\n  void bar() { baz(); }\n}\n";
+
+  private static final String SWITCH_SOURCE =
+      "class Foo {\n  int bar(int i) {\n"
+          + "    return switch (i) { case 1 -> 2; default -> 3; };\n  }\n}\n";
+
+  @Test
+  void fromNameIsCaseInsensitiveAndFallsBackToScan() {
+    assertEquals(ParseProfile.FULL, ParseProfile.fromName("full"));
+    assertEquals(ParseProfile.FULL, ParseProfile.fromName(" Full "));
+    assertEquals(ParseProfile.SCAN, ParseProfile.fromName("scan"));
+    assertEquals(ParseProfile.SCAN, ParseProfile.fromName("fast"));
+    assertEquals(ParseProfile.SCAN, ParseProfile.fromName(""));
+    assertEquals(ParseProfile.SCAN, ParseProfile.fromName(null));
+  }
+
+  @Test
+  void scanProfileSkipsCommentsButKeepsRanges() {
+    CompilationUnit cu = ParseProfile.SCAN.parser().parse(SOURCE).getResult().get();
+    MethodDeclaration method = cu.findFirst(MethodDeclaration.class).get();
+
+    assertEquals("bar", method.getNameAsString());
+    assertFalse(method.getComment().isPresent());
+    assertTrue(method.getRange().isPresent());
+  }
+
+  @Test
+  void scanProfileParsesSwitchExpressions() {
+    assertTrue(ParseProfile.SCAN.parser().parse(SWITCH_SOURCE).isSuccessful());
+  }
+
+  @Test
+  void fullProfileKeepsCommentsAndRanges() {
+    CompilationUnit cu = ParseProfile.FULL.parser().parse(SOURCE).getResult().get();
+    MethodDeclaration method = cu.findFirst(MethodDeclaration.class).get();
+
+    assertTrue(method.getComment().isPresent());
+    assertTrue(method.getRange().isPresent());
+  }
+
+  @Test
+  void parserIsReusedPerThreadAndSurvivesFailedParse() {
+    JavaParser parser = ParseProfile.SCAN.parser();
+
+    assertFalse(parser.parse("class {").isSuccessful());
+    assertTrue(parser.parse(SOURCE).isSuccessful());
+    assertSame(parser, ParseProfile.SCAN.parser());
+  }
+
+  @Test
+  void releaseParsersDropsTheThreadsParsers() {
+    JavaParser parser = ParseProfile.SCAN.parser();
+
+    ParseProfile.releaseParsers();
+
+    assertNotSame(parser, ParseProfile.SCAN.parser());
+  }
+}
@@ -0,0 +1,204 @@
+package com.lib.util.parsing.tool.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import com.lib.util.parsing.tool.service.SpillingMethodAggregator.DeclarationRecord;
+
+class SpillingMethodAggregatorTest {
+
+  @ParameterizedTest
+  @ValueSource(longs = {1, 500, 5000, Long.MAX_VALUE})
+  void mergeJoinMatchesInMemoryOracle(long thresholdBytes) throws IOException {
+    try (SpillingMethodAggregator aggregator = new SpillingMethodAggregator(thresholdBytes)) {
+      Set<String> invoked = new HashSet<>();
+      int declared = addRandomRecords(aggregator, invoked, 2000);
+
+      assertJoinMatches(aggregator, invoked, declared);
+    }
+  }
+
+  @Test
+  void keepsEverythingInMemoryBelowThreshold() throws IOException {
+    try (SpillingMethodAggregator aggregator = new SpillingMethodAggregator(Long.MAX_VALUE)) {
+      Set<String> invoked = new HashSet<>();
+      int declared = addRandomRecords(aggregator, invoked, 500);
+
+      assertJoinMatches(aggregator, invoked, declared);
+      assertEquals(0, aggregator.getSpilledRunCount());
+      assertNull(aggregator.getSpillDirectory());
+    }
+  }
+
+  @Test
+  void spillsToSortedRunsAtTinyThreshold() throws IOException {
+    try (SpillingMethodAggregator aggregator = new SpillingMethodAggregator(1)) {
+      Set<String> invoked = new HashSet<>();
+      int declared = addRandomRecords(aggregator, invoked, 50);
+
+      assertTrue(aggregator.getSpilledRunCount() > 0);
+      assertNotNull(aggregator.getSpillDirectory());
+      assertJoinMatches(aggregator, invoked, declared);
+    }
+  }
+
+  @Test
+  void compactsRunsOnceFanInIsReached() throws IOException {
+    try (SpillingMethodAggregator aggregator = new SpillingMethodAggregator(1)) {
+      Set<String> invoked = new HashSet<>();
+      // Every record spills its own run, so both record types go well past 64 runs
+      for (int i = 0; i < 300; i++) {
+        aggregator.addDeclaration(declaration("m" + i));
+        aggregator.addInvocation("m" + (i * 2));
+        invoked.add("m" + (i * 2));
+      }
+
+      // 300 = 4 * 64 + 44, so 4 merged runs and 44 fresh runs per record type
+      assertEquals(2 * (4 + 44), aggregator.getSpilledRunCount());
+      assertEquals(aggregator.getSpilledRunCount(), runFiles(aggregator, "").size());
+      assertJoinMatches(aggregator, invoked, 300);
+    }
+  }
+
+  @Test
+  void compactionLeavesEarlierMergedRunsAlone() throws IOException {
+    try (SpillingMethodAggregator aggregator = new SpillingMethodAggregator(1)) {
+      for (int i = 0; i < 64; i++) {
+        aggregator.addDeclaration(declaration("m" + i));
+      }
+      Set<Path> firstMerge = runFiles(aggregator, "declared");
+      assertEquals(1, firstMerge.size());
+
+      for (int i = 64; i < 128; i++) {
+        aggregator.addDeclaration(declaration("m" + i));
+      }
+      Set<Path> secondMerge = runFiles(aggregator, "declared");
+
+      assertEquals(2, secondMerge.size());
+      assertTrue(secondMerge.containsAll(firstMerge));
+      assertJoinMatches(aggregator, Set.of(), 128);
+    }
+  }
+
+  @Test
+  void collapsesDuplicateInvocationsWhenCompacting() throws IOException {
+    try (SpillingMethodAggregator aggregator = new SpillingMethodAggregator(1)) {
+      for (int i = 0; i < 64; i++) {
+        aggregator.addInvocation("a");
+      }
+      Set<Path> runs = runFiles(aggregator, "invoked");
+      assertEquals(1, runs.size());
+
+      try (DataInputStream in = new DataInputStream(Files.newInputStream(runs.iterator().next()))) {
+        assertEquals(1, in.readInt());
+      }
+    }
+  }
+
+  @Test
+  void mergesDownToFanInBeforeJoining() throws IOException {
+    try (SpillingMethodAggregator aggregator = new SpillingMethodAggregator(1)) {
+      // 63 merged runs and 63 fresh runs are more than one merge may open
+      int declared = 64 * 63 + 63;
+      for (int i = 0; i < declared; i++) {
+        aggregator.addDeclaration(declaration("m" + i));
+      }
+      aggregator.addInvocation("m7");
+      assertEquals(63 + 63 + 1, aggregator.getSpilledRunCount());
+
+      assertJoinMatches(aggregator, Set.of("m7"), declared);
+      assertEquals(64, runFiles(aggregator, "declared").size());
+    }
+  }
+
+  @Test
+  void handlesDuplicateNamesAcrossRuns() throws IOException {
+    try (SpillingMethodAggregator aggregator = new SpillingMethodAggregator(1)) {
+      aggregator.addDeclaration(declaration("a"));
+      aggregator.addInvocation("a");
+      aggregator.addDeclaration(declaration("b"));
+      aggregator.addDeclaration(declaration("a"));
+      aggregator.addInvocation("a");
+      aggregator.addDeclaration(declaration("b"));
+      aggregator.addInvocation("c");
+
+      List<String> joined = new ArrayList<>();
+      aggregator.mergeJoin(
+          (declaration, invoked) -> joined.add(declaration.name() + "=" + invoked));
+
+      assertEquals(List.of("a=true", "a=true", "b=false", "b=false"), joined);
+    }
+  }
+
+  @Test
+  void removesSpillDirectoryOnClose() throws IOException {
+    SpillingMethodAggregator aggregator = new SpillingMethodAggregator(1);
+    aggregator.addDeclaration(declaration("a"));
+    aggregator.addInvocation("b");
+    aggregator.mergeJoin((declaration, invoked) -> {});
+    Path spillDirectory = aggregator.getSpillDirectory();
+    assertTrue(Files.isDirectory(spillDirectory));
+
+    aggregator.close();
+
+    assertFalse(Files.exists(spillDirectory));
+    assertNull(aggregator.getSpillDirectory());
+  }
+
+  private static Set<Path> runFiles(SpillingMethodAggregator aggregator, String prefix)
+      throws IOException {
+    try (Stream<Path> runs = Files.list(aggregator.getSpillDirectory())) {
+      return runs
+          .filter(run -> run.getFileName().toString().startsWith(prefix))
+          .collect(Collectors.toSet());
+    }
+  }
+
+  private static int addRandomRecords(
+      SpillingMethodAggregator aggregator, Set<String> invoked, int count) throws IOException {
+    Random random = new Random(42);
+    for (int i = 0; i < count; i++) {
+      aggregator.addDeclaration(declaration("m" + random.nextInt(count / 4)));
+      String invocation = "m" + random.nextInt(count / 4);
+      aggregator.addInvocation(invocation);
+      invoked.add(invocation);
+    }
+    return count;
+  }
+
+  private static void assertJoinMatches(
+      SpillingMethodAggregator aggregator, Set<String> invoked, int declared) throws IOException {
+    List<String> names = new ArrayList<>();
+    aggregator.mergeJoin(
+        (declaration, isInvoked) -> {
+          assertEquals(invoked.contains(declaration.name()), isInvoked, declaration.name());
+          names.add(declaration.name());
+        });
+
+    assertEquals(declared, names.size());
+    List<String> sorted = new ArrayList<>(names);
+    sorted.sort(null);
+    assertEquals(sorted, names);
+  }
+
+  private static DeclarationRecord declaration(String name) {
+    return new DeclarationRecord(name, "Foo", "/src/Foo.java", "void " + name + "()");
+  }
+}
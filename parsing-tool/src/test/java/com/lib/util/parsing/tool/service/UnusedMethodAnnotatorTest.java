@@ -0,0 +1,346 @@
+package com.lib.util.parsing.tool.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UnusedMethodAnnotatorTest {
+
+  private static final Set<String> UNUSED = Set.of("Shop.orphan", "Caller.call");
+
+  private static final String SHOP =
+      String.join(
+          "\n",
+          "package p;",
+          "",
+          "import java.util.HashMap;",
+          "import java.util.Map;",
+          "",
+          "public class Shop {",
+          "  public static Map<String, String> PRICES = new HashMap<>();",
+          "  private String name;",
+          "  private boolean open;",
+          "",
+          "  public String getName() {",
+          "    return name;",
+          "  }",
+          "",
+          "  public void setName(String name) {",
+          "    this.name = name;",
+          "  }",
+          "",
+          "  public boolean isOpen() {",
+          "    return open;",
+          "  }",
+          "",
+          "  public Shop withName(String name) {",
+          "    return this;",
+          "  }",
+          "",
+          "  @Override",
+          "  public String toString() {",
+          "    return name;",
+          "  }",
+          "",
+          "  @Scheduled",
+          "  public void restock() {",
+          "    checkout();",
+          "  }",
+          "",
+          "  void checkout() {",
+          "    audit();",
+          "  }",
+          "",
+          "  void audit() {}",
+          "",
+          "  void orphan() {}",
+          "",
+          "  void ruleMethod() {}",
+          "",
+          "  void findParamValue() {}",
+          "}",
+          "");
+
+  // Files with a line containing "interface" are excluded from the declarations
+  private static final String API =
+      String.join("\n", "package p;", "", "public interface Api {", "  void remote();", "}", "");
+
+  private static final String CALLER =
+      String.join(
+          "\n",
+          "package p;",
+          "",
+          "public class Caller {",
+          "  void call(Shop shop) {",
+          "    shop.getName();",
+          "    Runnable r = shop::toString;",
+          "  }",
+          "}",
+          "");
+
+  private static final String SHOP_TEST =
+      String.join(
+          "\n",
+          "package p;",
+          "",
+          "public class ShopTest {",
+          "  void helperNeverCalled() {}",
+          "}",
+          "");
+
+  @TempDir Path tempDir;
+
+  @Test
+  void scanKeepsTheExtractionRules() throws IOException {
+    Path project = writeProject("project");
+
+    try (UnusedMethodAnnotator engine = new UnusedMethodAnnotator(2, 2, 1 << 20)) {
+      ScanResult result = engine.scan(options(project));
+
+      assertEquals(UNUSED, new HashSet<>(result.unusedMethods()));
+      assertEquals(Set.of("missingMethod"), result.methodsInManifestButNotInCode());
+      assertEquals(
+          List.of("Found public static Map variable: PRICES in file Shop"), result.publicMaps());
+      assertTrue(result.report().contains("Shop" + System.lineSeparator()));
+      assertTrue(result.report().contains("void orphan() {"));
+    }
+    assertDeprecatedOnce(project);
+  }
+
+  @Test
+  void spillingScanFindsTheSameMethods() throws IOException {
+    Path project = writeProject("project");
+
+    try (UnusedMethodAnnotator engine = new UnusedMethodAnnotator(2, 2, 1 << 20)) {
+      ScanResult result = engine.scan(options(project).withSpillThresholdBytes(1));
+
+      assertEquals(UNUSED, new HashSet<>(result.unusedMethods()));
+      assertTrue(result.report().contains("void orphan()"));
+    }
+    assertDeprecatedOnce(project);
+  }
+
+  @Test
+  void onlyInMemoryScansFillTheFactCache() throws IOException {
+    Path project = writeProject("project");
+
+    try (UnusedMethodAnnotator engine = new UnusedMethodAnnotator(2, 2, 1 << 20)) {
+      engine.scan(options(project).withSpillThresholdBytes(1));
+      assertEquals(0, engine.cachedFactBytes());
+
+      engine.scan(options(project));
+      assertTrue(engine.cachedFactBytes() > 0);
+    }
+  }
+
+  @Test
+  void rescanExtractsRewrittenFilesAgain() throws IOException {
+    Path project = writeProject("project");
+
+    try (UnusedMethodAnnotator engine = new UnusedMethodAnnotator(2, 2, 1 << 20)) {
+      assertEquals(UNUSED, new HashSet<>(engine.scan(options(project)).unusedMethods()));
+
+      // Deprecated methods count as invoked, stale facts would report them again
+      assertEquals(List.of(), engine.scan(options(project)).unusedMethods());
+    }
+    assertDeprecatedOnce(project);
+  }
+
+  @Test
+  void concurrentScansOfDifferentProjects() throws Exception {
+    List<Path> projects = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      projects.add(writeProject("project" + i));
+    }
+
+    try (UnusedMethodAnnotator engine = new UnusedMethodAnnotator(4, 4, 1 << 20)) {
+      List<Future<ScanResult>> results = new ArrayList<>();
+      for (Path project : projects) {
+        results.add(engine.submit(options(project)));
+      }
+      for (int i = 0; i < projects.size(); i++) {
+        ScanResult result = results.get(i).get(1, TimeUnit.MINUTES);
+        assertEquals(projects.get(i).toString(), result.projectPath());
+        assertEquals(UNUSED, new HashSet<>(result.unusedMethods()));
+      }
+    }
+    for (Path project : projects) {
+      assertDeprecatedOnce(project);
+    }
+  }
+
+  @Test
+  void concurrentScansOfTheSameProjectDeprecateOnce() throws Exception {
+    Path project = writeProject("project");
+
+    try (UnusedMethodAnnotator engine = new UnusedMethodAnnotator(4, 4, 1 << 20)) {
+      List<Future<ScanResult>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        results.add(engine.submit(options(project)));
+      }
+      Set<String> unused = new HashSet<>();
+      for (Future<ScanResult> result : results) {
+        unused.addAll(result.get(1, TimeUnit.MINUTES).unusedMethods());
+      }
+      assertEquals(UNUSED, unused);
+    }
+    assertDeprecatedOnce(project);
+  }
+
+  @Test
+  void submitBlocksWhileSchedulerIsFull() throws Exception {
+    Path slowProject = writeSlowProject();
+    Path project = writeProject("project");
+
+    try (UnusedMethodAnnotator engine = new UnusedMethodAnnotator(1, 1, 0)) {
+      Future<ScanResult> running = engine.submit(options(slowProject));
+      Future<ScanResult> queued = engine.submit(options(project));
+
+      List<Future<ScanResult>> third = new ArrayList<>();
+      Thread submitter =
+          new Thread(
+              () -> {
+                try {
+                  third.add(engine.submit(options(project)));
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              });
+      submitter.start();
+      submitter.join(300);
+
+      assertFalse(running.isDone());
+      assertTrue(submitter.isAlive());
+
+      running.get(1, TimeUnit.MINUTES);
+      queued.get(1, TimeUnit.MINUTES);
+      submitter.join(TimeUnit.MINUTES.toMillis(1));
+      assertFalse(submitter.isAlive());
+      third.get(0).get(1, TimeUnit.MINUTES);
+    }
+  }
+
+  @Test
+  void cancelledQueuedScansGiveTheirSlotsBack() throws Exception {
+    Path slowProject = writeSlowProject();
+    Path project = writeProject("project");
+
+    try (UnusedMethodAnnotator engine = new UnusedMethodAnnotator(1, 2, 0)) {
+      Future<ScanResult> running = engine.submit(options(slowProject));
+      List<Future<ScanResult>> queued =
+          List.of(engine.submit(options(project)), engine.submit(options(project)));
+      for (Future<ScanResult> job : queued) {
+        assertTrue(job.cancel(false));
+      }
+      running.get(1, TimeUnit.MINUTES);
+
+      // The running scan gives its slot back right after its result is set
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (engine.availableJobSlots() < 3 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(3, engine.availableJobSlots());
+
+      List<Future<ScanResult>> next =
+          assertTimeoutPreemptively(
+              Duration.ofMinutes(1),
+              () ->
+                  List.of(
+                      engine.submit(options(project)),
+                      engine.submit(options(project)),
+                      engine.submit(options(project))));
+      for (Future<ScanResult> job : next) {
+        job.get(1, TimeUnit.MINUTES);
+      }
+    }
+  }
+
+  @Test
+  void closeWaitsForRunningScans() throws Exception {
+    Path slowProject = writeSlowProject();
+
+    Future<ScanResult> running;
+    try (UnusedMethodAnnotator engine = new UnusedMethodAnnotator(1, 1, 0)) {
+      running = engine.submit(options(slowProject));
+    }
+
+    assertTrue(running.isDone());
+    assertFalse(running.get().unusedMethods().isEmpty());
+  }
+
+  @Test
+  void submitAfterCloseIsRejected() throws IOException {
+    Path project = writeProject("project");
+    UnusedMethodAnnotator engine = new UnusedMethodAnnotator(1, 1, 0);
+    engine.close();
+
+    assertThrows(IllegalStateException.class, () -> engine.submit(options(project)));
+  }
+
+  private static ScanOptions options(Path project) {
+    return new ScanOptions(
+        project.toString(), Set.of("ruleMethod", "missingMethod"), ParseProfile.SCAN, 0);
+  }
+
+  private Path writeProject(String name) throws IOException {
+    Path sources = Files.createDirectories(tempDir.resolve(name).resolve("p"));
+    Files.writeString(sources.resolve("Shop.java"), SHOP);
+    Files.writeString(sources.resolve("Api.java"), API);
+    Files.writeString(sources.resolve("Caller.java"), CALLER);
+    Files.writeString(sources.resolve("ShopTest.java"), SHOP_TEST);
+    return sources.getParent();
+  }
+
+  // Enough unused methods that parsing and rewriting keep a worker busy for a while
+  private Path writeSlowProject() throws IOException {
+    Path sources = Files.createDirectories(tempDir.resolve("slow").resolve("p"));
+    for (int file = 0; file < 80; file++) {
+      StringBuilder source = new StringBuilder("package p;\n\npublic class Slow" + file + " {\n");
+      for (int method = 0; method < 10; method++) {
+        source.append("  void slow").append(file).append('_').append(method).append("() {}\n");
+      }
+      Files.writeString(sources.resolve("Slow" + file + ".java"), source.append("}\n"));
+    }
+    return sources.getParent();
+  }
+
+  private static void assertDeprecatedOnce(Path project) throws IOException {
+    assertEquals(1, count(project.resolve("p/Shop.java"), "@Deprecated()"));
+    assertEquals(1, count(project.resolve("p/Caller.java"), "@Deprecated()"));
+    assertEquals(0, count(project.resolve("p/Api.java"), "@Deprecated()"));
+    assertEquals(0, count(project.resolve("p/ShopTest.java"), "@Deprecated()"));
+    try (Stream<Path> files = Files.walk(project)) {
+      files
+          .filter(file -> file.toString().endsWith(".java") && Files.isRegularFile(file))
+          .forEach(file -> assertTrue(parses(file), file.toString()));
+    }
+  }
+
+  private static boolean parses(Path file) {
+    try {
+      return ParseProfile.FULL.parser().parse(file).isSuccessful();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static long count(Path file, String text) throws IOException {
+    return Files.readString(file).lines().filter(line -> line.contains(text)).count();
+  }
+}